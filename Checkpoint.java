@@ -0,0 +1,365 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Durable progress for Mandelbrot.drawFrames so a long zoom can be killed
+ * and picked back up. After every finished frame the run configuration and
+ * the zoom state (bounds and increments) are written to CHECKPOINT_FILE, and
+ * while a frame is being drawn its finished rows go to PARTIAL_FILE. Both
+ * are written to a temp file and moved into place, so a crash leaves either
+ * the old or the new copy, never half of one.
+ */
+public class Checkpoint {
+
+	static final String CHECKPOINT_FILE = "images/checkpoint.properties";
+	static final String PARTIAL_FILE = "images/checkpoint.partial";
+
+	// names of the zoom state values, in the order captureBounds() returns them
+	static final String[] BOUND_NAMES = {
+		"minX", "maxX", "minY", "maxY", "minXInc", "minYInc", "maxXInc", "maxYInc"
+	};
+
+	// run configuration
+	int width;
+	int height;
+	int numFrames;
+	int maxIterations;
+	int[] palette;       // FractalDrawer colors followed by black
+	BigDecimal zoomFactor;
+	int zoomDigits;      // precision of Mandelbrot.ZOOM_ROUNDING
+	BigDecimal[] start;  // zoom state before the first frame
+	BigDecimal[] end;    // ENDING_MIN_X, ENDING_MAX_X, ENDING_MIN_Y, ENDING_MAX_Y
+
+	// zoom state after frameCount frames have been saved
+	int frameCount;
+	BigDecimal[] bounds;
+
+	/**
+	 * Constructor that captures the configuration and zoom state of
+	 * Mandelbrot as it is now, as the start of a run with no frames done.
+	 */
+	Checkpoint() {
+		width = Mandelbrot.WIDTH;
+		height = Mandelbrot.HEIGHT;
+		numFrames = Mandelbrot.NUM_FRAMES;
+		maxIterations = Mandelbrot.MAX_ITERATIONS;
+		palette = capturePalette();
+		zoomFactor = Mandelbrot.ZOOM_FACTOR;
+		zoomDigits = Mandelbrot.ZOOM_ROUNDING.getPrecision();
+		start = captureBounds();
+		end = new BigDecimal[] {
+			Mandelbrot.ENDING_MIN_X, Mandelbrot.ENDING_MAX_X,
+			Mandelbrot.ENDING_MIN_Y, Mandelbrot.ENDING_MAX_Y
+		};
+		frameCount = 0;
+		bounds = start.clone();
+	}
+
+	/**
+	 * Records that frameCount frames are done and the zoom state has been
+	 * advanced past them, then writes the checkpoint and drops the partial
+	 * frame it replaces.
+	 * @param frameCount number of frames saved so far
+	 * @throws IOException if the checkpoint can't be written
+	 */
+	public void update(int frameCount) throws IOException {
+		this.frameCount = frameCount;
+		this.bounds = captureBounds();
+		save();
+		new File(PARTIAL_FILE).delete();
+	}
+
+	/**
+	 * Writes the configuration and zoom state to CHECKPOINT_FILE. Bounds
+	 * are written with BigDecimal.toString, which reads back to the same
+	 * value and scale.
+	 * @throws IOException if the file can't be written
+	 */
+	public void save() throws IOException {
+		Properties p = new Properties();
+		p.setProperty("width", Integer.toString(width));
+		p.setProperty("height", Integer.toString(height));
+		p.setProperty("numFrames", Integer.toString(numFrames));
+		p.setProperty("maxIterations", Integer.toString(maxIterations));
+		StringBuilder colors = new StringBuilder();
+		for (int i = 0; i < palette.length; i++) {
+			colors.append(i == 0 ? "" : ",").append(Integer.toHexString(palette[i]));
+		}
+		p.setProperty("palette", colors.toString());
+		p.setProperty("zoomFactor", zoomFactor.toString());
+		p.setProperty("zoomDigits", Integer.toString(zoomDigits));
+		for (int i = 0; i < BOUND_NAMES.length; i++) {
+			p.setProperty("start." + BOUND_NAMES[i], start[i].toString());
+			p.setProperty("state." + BOUND_NAMES[i], bounds[i].toString());
+		}
+		for (int i = 0; i < end.length; i++) {
+			p.setProperty("end." + BOUND_NAMES[i], end[i].toString());
+		}
+		p.setProperty("frameCount", Integer.toString(frameCount));
+
+		File tmp = new File(CHECKPOINT_FILE + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmp)) {
+			p.store(out, "Mandelbrot zoom checkpoint");
+			out.getFD().sync();
+		}
+		moveIntoPlace(tmp, new File(CHECKPOINT_FILE));
+	}
+
+	/**
+	 * Reads a checkpoint back from CHECKPOINT_FILE.
+	 * @return the saved checkpoint
+	 * @throws IOException if the file can't be read or is missing values
+	 */
+	public static Checkpoint load() throws IOException {
+		Properties p = new Properties();
+		try (InputStream in = new FileInputStream(CHECKPOINT_FILE)) {
+			p.load(in);
+		}
+		try {
+			Checkpoint c = new Checkpoint();
+			c.width = Integer.parseInt(p.getProperty("width"));
+			c.height = Integer.parseInt(p.getProperty("height"));
+			c.numFrames = Integer.parseInt(p.getProperty("numFrames"));
+			c.maxIterations = Integer.parseInt(p.getProperty("maxIterations"));
+			String[] colors = p.getProperty("palette").split(",");
+			c.palette = new int[colors.length];
+			for (int i = 0; i < colors.length; i++) {
+				c.palette[i] = Integer.parseUnsignedInt(colors[i], 16);
+			}
+			c.zoomFactor = new BigDecimal(p.getProperty("zoomFactor"));
+			c.zoomDigits = Integer.parseInt(p.getProperty("zoomDigits"));
+			for (int i = 0; i < BOUND_NAMES.length; i++) {
+				c.start[i] = new BigDecimal(p.getProperty("start." + BOUND_NAMES[i]));
+				c.bounds[i] = new BigDecimal(p.getProperty("state." + BOUND_NAMES[i]));
+			}
+			for (int i = 0; i < c.end.length; i++) {
+				c.end[i] = new BigDecimal(p.getProperty("end." + BOUND_NAMES[i]));
+			}
+			c.frameCount = Integer.parseInt(p.getProperty("frameCount"));
+			return c;
+		} catch (NullPointerException | NumberFormatException e) {
+			throw new IOException("Corrupt checkpoint " + CHECKPOINT_FILE, e);
+		}
+	}
+
+	/**
+	 * Loads the checkpoint for a resumed run and puts Mandelbrot back in the
+	 * zoom state to continue from. The checkpoint has to belong to the same
+	 * configuration as this program. Saved frames are checked, and if one is
+	 * missing or unreadable the run rewinds to redraw from there. The zoom
+	 * state is rebuilt by replaying the increments from the start, and has
+	 * to match the saved one exactly, so a resumed run draws exactly
+	 * what an uninterrupted one would.
+	 * @return the checkpoint to keep updating, or a fresh one if there is none
+	 * @throws IOException if the checkpoint can't be used for this run
+	 */
+	public static Checkpoint resume() throws IOException {
+		Checkpoint fresh = new Checkpoint();
+		if (!new File(CHECKPOINT_FILE).exists()) {
+			// rows left without a checkpoint can't be tied to this run
+			System.out.println("No checkpoint found, starting from frame 1");
+			new File(PARTIAL_FILE).delete();
+			return fresh;
+		}
+		Checkpoint saved = load();
+		if (saved.width != fresh.width || saved.height != fresh.height ||
+			saved.numFrames != fresh.numFrames || saved.maxIterations != fresh.maxIterations ||
+			!Arrays.equals(saved.palette, fresh.palette) || !saved.zoomFactor.equals(fresh.zoomFactor) ||
+			saved.zoomDigits != fresh.zoomDigits ||
+			!Arrays.equals(saved.start, fresh.start) || !Arrays.equals(saved.end, fresh.end)) {
+			throw new IOException("Checkpoint " + CHECKPOINT_FILE + " was made with a different configuration");
+		}
+
+		// first frame that needs drawing again
+		int resumeFrame = saved.frameCount;
+		for (int frame = 1; frame <= saved.frameCount; frame++) {
+			if (!isValidFrame(frame, saved.width, saved.height)) {
+				resumeFrame = frame - 1;
+				break;
+			}
+		}
+
+		// replay the zoom from the start, keeping the state at resumeFrame
+		restoreBounds(saved.start);
+		BigDecimal[] resumeBounds = saved.start.clone();
+		for (int frame = 1; frame <= saved.frameCount; frame++) {
+			Mandelbrot.advanceBounds();
+			if (frame == resumeFrame) {
+				resumeBounds = captureBounds();
+			}
+		}
+		if (!Arrays.equals(captureBounds(), saved.bounds)) {
+			throw new IOException("Checkpoint " + CHECKPOINT_FILE + " zoom state doesn't match its configuration");
+		}
+
+		restoreBounds(resumeBounds);
+		saved.bounds = resumeBounds;
+		if (resumeFrame < saved.frameCount) {
+			System.out.println("Frame " + (resumeFrame+1) + " is missing or unreadable, redrawing from there");
+			saved.frameCount = resumeFrame;
+			new File(PARTIAL_FILE).delete();
+			saved.save();
+		}
+		System.out.println("Resuming after frame " + saved.frameCount);
+		return saved;
+	}
+
+	/**
+	 * Deletes CHECKPOINT_FILE and PARTIAL_FILE, so a fresh run never picks
+	 * up progress left behind by an earlier one.
+	 */
+	public static void discard() {
+		new File(CHECKPOINT_FILE).delete();
+		new File(PARTIAL_FILE).delete();
+	}
+
+	/**
+	 * Writes the first rowsDone rows of the frame being drawn to PARTIAL_FILE,
+	 * along with the frame number, settings and bounds they were drawn for.
+	 * @param rowsDone number of finished rows at the start of pixels
+	 * @param pixels pixel colors of the frame, row by row
+	 * @throws IOException if the file can't be written
+	 */
+	public void savePartial(int rowsDone, int[] pixels) throws IOException {
+		File tmp = new File(PARTIAL_FILE + ".tmp");
+		try (FileOutputStream fos = new FileOutputStream(tmp);
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+			out.writeInt(frameCount + 1);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(maxIterations);
+			out.writeInt(palette.length);
+			for (int color : palette) {
+				out.writeInt(color);
+			}
+			for (BigDecimal b : captureBounds()) {
+				out.writeUTF(b.toString());
+			}
+			out.writeInt(rowsDone);
+			for (int i = 0; i < rowsDone * width; i++) {
+				out.writeInt(pixels[i]);
+			}
+			out.flush();
+			fos.getFD().sync();
+		}
+		moveIntoPlace(tmp, new File(PARTIAL_FILE));
+	}
+
+	/**
+	 * Copies the rows saved in PARTIAL_FILE into pixels if they belong to
+	 * the frame about to be drawn.
+	 * @param pixels pixel colors of the frame, row by row
+	 * @return number of rows restored, 0 if there was nothing usable
+	 */
+	public int loadPartial(int[] pixels) {
+		File f = new File(PARTIAL_FILE);
+		if (!f.exists()) {
+			return 0;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+			if (in.readInt() != frameCount + 1 || in.readInt() != width || in.readInt() != height ||
+				in.readInt() != maxIterations) {
+				return 0;
+			}
+			int[] partialPalette = new int[in.readInt()];
+			if (partialPalette.length != palette.length) {
+				return 0;
+			}
+			for (int i = 0; i < partialPalette.length; i++) {
+				partialPalette[i] = in.readInt();
+			}
+			BigDecimal[] partialBounds = new BigDecimal[BOUND_NAMES.length];
+			for (int i = 0; i < partialBounds.length; i++) {
+				partialBounds[i] = new BigDecimal(in.readUTF());
+			}
+			int rowsDone = in.readInt();
+			if (!Arrays.equals(partialPalette, palette) || !Arrays.equals(partialBounds, captureBounds()) ||
+				rowsDone < 0 || rowsDone > height) {
+				return 0;
+			}
+			int[] rows = new int[rowsDone * width];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = in.readInt();
+			}
+			System.arraycopy(rows, 0, pixels, 0, rows.length);
+			return rowsDone;
+		} catch (IOException | NumberFormatException e) {
+			// a torn or foreign file just means the frame starts over
+			return 0;
+		}
+	}
+
+	/**
+	 * Checks that a saved frame image exists, decodes, and has the
+	 * expected size.
+	 * @param frame 1-based frame number
+	 * @param width expected image width
+	 * @param height expected image height
+	 * @return true if the frame doesn't need to be drawn again
+	 */
+	static boolean isValidFrame(int frame, int width, int height) {
+		File f = new File(Mandelbrot.frameFileName(frame));
+		try {
+			BufferedImage img = ImageIO.read(f);
+			return img != null && img.getWidth() == width && img.getHeight() == height;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Moves tmp over target in one step, so readers see the old or the new
+	 * file and never a partly written one.
+	 * @param tmp fully written file
+	 * @param target file to replace
+	 * @throws IOException if the move fails
+	 */
+	static void moveIntoPlace(File tmp, File target) throws IOException {
+		Files.move(tmp.toPath(), target.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// colors frames are drawn with: the color map followed by black
+	static int[] capturePalette() {
+		int[] colors = Arrays.copyOf(Mandelbrot.fd.colors, Mandelbrot.fd.colors.length + 1);
+		colors[colors.length - 1] = Mandelbrot.fd.black;
+		return colors;
+	}
+
+	// current zoom state of Mandelbrot, in BOUND_NAMES order
+	static BigDecimal[] captureBounds() {
+		return new BigDecimal[] {
+			Mandelbrot.STARTING_MIN_X, Mandelbrot.STARTING_MAX_X,
+			Mandelbrot.STARTING_MIN_Y, Mandelbrot.STARTING_MAX_Y,
+			Mandelbrot.MIN_X_INC, Mandelbrot.MIN_Y_INC,
+			Mandelbrot.MAX_X_INC, Mandelbrot.MAX_Y_INC
+		};
+	}
+
+	// sets the zoom state of Mandelbrot, in BOUND_NAMES order
+	static void restoreBounds(BigDecimal[] b) {
+		Mandelbrot.STARTING_MIN_X = b[0];
+		Mandelbrot.STARTING_MAX_X = b[1];
+		Mandelbrot.STARTING_MIN_Y = b[2];
+		Mandelbrot.STARTING_MAX_Y = b[3];
+		Mandelbrot.MIN_X_INC = b[4];
+		Mandelbrot.MIN_Y_INC = b[5];
+		Mandelbrot.MAX_X_INC = b[6];
+		Mandelbrot.MAX_Y_INC = b[7];
+	}
+}
@@ -11,6 +11,12 @@ public class ComplexNum {
 	BigDecimal real;
 	BigDecimal imaginary;
 	
+	/**
+	 * Rounding applied to the results of add, pow2 and magnitude. Carried 
+	 * along so arbitrary precision zooms don't fall back to DEFAULT_ROUNDING.
+	 */
+	MathContext rounding = DEFAULT_ROUNDING;
+	
 	/**
 	 * Value used for default rounding of the ComplexNum when being constructed. 
 	 * Uses Java MathContext to pass to BigDecimal.round
@@ -24,8 +30,8 @@ public class ComplexNum {
 	 * @param imaginary
 	 */
 	ComplexNum (BigDecimal real, BigDecimal imaginary) {
-		this.real = real.round(DEFAULT_ROUNDING);
-		this.imaginary = imaginary.round(DEFAULT_ROUNDING);
+		this.real = round(real, DEFAULT_ROUNDING);
+		this.imaginary = round(imaginary, DEFAULT_ROUNDING);
 	}
 	
 	/**
@@ -36,8 +42,21 @@ public class ComplexNum {
 	 * @param roundFactor MathContext specifying precision for rounding 
 	 */
 	ComplexNum (BigDecimal real, BigDecimal imaginary, MathContext roundFactor) {
-		this.real = real.round(roundFactor);
-		this.imaginary = imaginary.round(roundFactor);
+		this.real = round(real, roundFactor);
+		this.imaginary = round(imaginary, roundFactor);
+		this.rounding = roundFactor;
+	}
+	
+	/**
+	 * Rounds value to roundFactor. Zeros are replaced with a plain 0, since 
+	 * rounding leaves their scale alone and a zero part (e.g. on the real 
+	 * axis) would otherwise double its scale on every pow2.
+	 */
+	private static BigDecimal round(BigDecimal value, MathContext roundFactor) {
+		if (value.signum() == 0) {
+			return BigDecimal.ZERO;
+		}
+		return value.round(roundFactor);
 	}
 	/**
 	 * Constructor for ComplexNum taking in Strings
@@ -65,7 +84,7 @@ public class ComplexNum {
 	 * @return sum value that is this + addend
 	 */
 	public ComplexNum add (ComplexNum addend) {
-		return new ComplexNum(real.add(addend.real), imaginary.add(addend.imaginary));
+		return new ComplexNum(real.add(addend.real), imaginary.add(addend.imaginary), rounding);
 	}
 	/**
 	 * Returns new complex number that is this^2 
@@ -79,7 +98,7 @@ public class ComplexNum {
 		// = (a^2 - b^2) + (2ab)i 
 		BigDecimal rl = real.pow(2).subtract(imaginary.pow(2)); 
 		BigDecimal im = real.multiply(imaginary).multiply(new BigDecimal("2"));
-		return new ComplexNum(rl, im);
+		return new ComplexNum(rl, im, rounding);
 	}
 	
 	/**
@@ -88,11 +107,21 @@ public class ComplexNum {
 	 * @return magnitude of this
 	 */
 	public BigDecimal magnitude() {
-		BigDecimal temp = real.pow(2, DEFAULT_ROUNDING).add(imaginary.pow(2, DEFAULT_ROUNDING));
-		return temp.sqrt(DEFAULT_ROUNDING);
+		BigDecimal temp = real.pow(2, rounding).add(imaginary.pow(2, rounding));
+		return temp.sqrt(rounding);
 		
 	}
 	
+	/**
+	 * Returns the squared magnitude of this, a^2 + b^2. Avoids the 
+	 * BigDecimal.sqrt of magnitude(), so the escape test compares it 
+	 * against 4 instead of 2.
+	 * @return squared magnitude of this
+	 */
+	public BigDecimal magnitudeSquared() {
+		return real.multiply(real, rounding).add(imaginary.multiply(imaginary, rounding), rounding);
+	}
+	
 	/**
 	 * Returns a string representation of the object. That is, 
 	 * "[real,imaginary]"
@@ -46,6 +46,15 @@ public class DoubleComplexNum {
 		double tmp = (real * real) + (imaginary * imaginary);
 		return Math.sqrt(tmp);
 	}
+
+	/**
+	 * Returns the squared magnitude of this, a^2 + b^2. Cheaper than 
+	 * magnitude() for the escape test, compared against 4 instead of 2.
+	 * @return squared magnitude of this
+	 */
+	public double magnitudeSquared() {
+		return (real * real) + (imaginary * imaginary);
+	}
 	
 	/**
 	 * Returns a string representation of the object.
@@ -0,0 +1,139 @@
+import java.math.BigDecimal;
+
+/**
+ * Unevaluated sum of two doubles (hi + lo) giving roughly 106 bits of
+ * mantissa, about twice what a plain double holds. Cheaper than BigDecimal
+ * for zooms that have just run past double precision.
+ */
+public class DoubleDouble {
+
+	double hi;
+	double lo;
+
+	/**
+	 * Constructor that takes in the high and low parts. The caller is
+	 * responsible for |lo| being no more than half an ulp of hi.
+	 * @param hi leading part of the value
+	 * @param lo trailing error part of the value
+	 */
+	DoubleDouble (double hi, double lo) {
+		this.hi = hi;
+		this.lo = lo;
+	}
+
+	/**
+	 * Constructor for a DoubleDouble holding exactly one double
+	 * @param value the value to hold
+	 */
+	DoubleDouble (double value) {
+		this(value, 0);
+	}
+
+	/**
+	 * Constructor for the DoubleDouble nearest to a BigDecimal: hi is the
+	 * nearest double and lo the nearest double to what hi left out.
+	 * @param value the value to hold
+	 */
+	DoubleDouble (BigDecimal value) {
+		this.hi = value.doubleValue();
+		this.lo = value.subtract(new BigDecimal(hi)).doubleValue();
+	}
+
+	/**
+	 * Returns new value that is this + addend
+	 * @param addend value to be added to this DoubleDouble
+	 * @return sum value that is this + addend
+	 */
+	public DoubleDouble add (DoubleDouble addend) {
+		// two-sum of the high parts is exact, the low parts ride along in the error
+		double s = hi + addend.hi;
+		double bb = s - hi;
+		double e = (hi - (s - bb)) + (addend.hi - bb);
+		e += lo + addend.lo;
+		return normalize(s, e);
+	}
+
+	/**
+	 * Returns new value that is this - subtrahend
+	 * @param subtrahend value to be subtracted from this DoubleDouble
+	 * @return difference value that is this - subtrahend
+	 */
+	public DoubleDouble subtract (DoubleDouble subtrahend) {
+		return add(subtrahend.negate());
+	}
+
+	/**
+	 * Returns new value that is this * factor
+	 * @param factor value to multiply this DoubleDouble by
+	 * @return product value that is this * factor
+	 */
+	public DoubleDouble multiply (DoubleDouble factor) {
+		// fma recovers the exact rounding error of the high product
+		double p = hi * factor.hi;
+		double e = Math.fma(hi, factor.hi, -p);
+		e += hi * factor.lo + lo * factor.hi;
+		return normalize(p, e);
+	}
+
+	/**
+	 * Returns new value that is this * factor
+	 * @param factor plain double to multiply this DoubleDouble by
+	 * @return product value that is this * factor
+	 */
+	public DoubleDouble multiply (double factor) {
+		double p = hi * factor;
+		double e = Math.fma(hi, factor, -p);
+		e += lo * factor;
+		return normalize(p, e);
+	}
+
+	/**
+	 * Returns new value that is this / divisor
+	 * @param divisor plain double to divide this DoubleDouble by
+	 * @return quotient value that is this / divisor
+	 */
+	public DoubleDouble divide (double divisor) {
+		// long division: one quotient digit per double, correct with the remainder
+		double q1 = hi / divisor;
+		double p = q1 * divisor;
+		double pErr = Math.fma(q1, divisor, -p);
+		double r = ((hi - p) - pErr) + lo;
+		double q2 = r / divisor;
+		return normalize(q1, q2);
+	}
+
+	/**
+	 * Returns new value that is -this
+	 * @return -this
+	 */
+	public DoubleDouble negate () {
+		return new DoubleDouble(-hi, -lo);
+	}
+
+	/**
+	 * Returns the nearest plain double to this value
+	 * @return hi + lo rounded to a double
+	 */
+	public double doubleValue() {
+		return hi + lo;
+	}
+
+	/**
+	 * Renormalizes a pair where |e| may exceed half an ulp of s
+	 * (quick two-sum, valid because |s| >= |e|).
+	 */
+	private static DoubleDouble normalize (double s, double e) {
+		double hi = s + e;
+		double lo = e - (hi - s);
+		return new DoubleDouble(hi, lo);
+	}
+
+	/**
+	 * Returns a string representation of the object.
+	 * "hi+lo"
+	 * @return a string representation of the object
+	 */
+	public String toString() {
+		return Double.toString(hi)+"+"+Double.toString(lo);
+	}
+}
@@ -0,0 +1,56 @@
+public class DoubleDoubleComplexNum {
+
+	DoubleDouble real;
+	DoubleDouble imaginary;
+
+	/**
+	 * Constructor that takes in DoubleDouble values for the real and
+	 * imaginary parts.
+	 * @param real
+	 * @param imaginary
+	 */
+	DoubleDoubleComplexNum (DoubleDouble real, DoubleDouble imaginary) {
+		this.real = real;
+		this.imaginary = imaginary;
+	}
+
+	/**
+	 * Returns new complex number that is this + i
+	 * @param addend value to be added to this ComplexNum
+	 * @return sum value that is this + addend
+	 */
+	public DoubleDoubleComplexNum add (DoubleDoubleComplexNum addend) {
+		return new DoubleDoubleComplexNum(real.add(addend.real), imaginary.add(addend.imaginary));
+	}
+	/**
+	 * Returns new complex number that is this^2
+	 * @return this^2
+	 */
+	public DoubleDoubleComplexNum pow2 () {
+		// (a + bi)^2
+		// = (a^2 - b^2) + (2ab)i
+		DoubleDouble rl = real.multiply(real).subtract(imaginary.multiply(imaginary));
+		DoubleDouble im = real.multiply(imaginary).multiply(2);
+		return new DoubleDoubleComplexNum(rl, im);
+	}
+
+	/**
+	 * Returns the squared magnitude of this, a^2 + b^2, rounded to a double.
+	 * Only used for the escape test so the low parts don't matter here.
+	 * @return squared magnitude of this
+	 */
+	public double magnitudeSquared() {
+		double re = real.doubleValue();
+		double im = imaginary.doubleValue();
+		return (re * re) + (im * im);
+	}
+
+	/**
+	 * Returns a string representation of the object.
+	 * "[real,imaginary]"
+	 * @return a string representation of the object
+	 */
+	public String toString() {
+		return "["+real.toString()+","+imaginary.toString()+"]";
+	}
+}
@@ -1,5 +1,7 @@
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
 
 import javax.imageio.ImageIO;
 
@@ -14,34 +16,54 @@ public class Mandelbrot {
 	static final int HEIGHT = 1000;
 	static final int NUM_FRAMES = 10;
 
+	// rows drawn between saves of the in-progress frame to the checkpoint
+	static final int TILE_ROWS = 100;
+
 	// output image variables
 	static FractalDrawer fd = new FractalDrawer(WIDTH, HEIGHT, NUM_FRAMES);
 
 	// starting MIN and MAX coordinate values -- [-2, 2] encapsulates the full mandelbrot set
-	static double STARTING_MIN_X = -2;
-	static double STARTING_MAX_X =  2;
-	static double STARTING_MIN_Y = -2;
-	static double STARTING_MAX_Y =  2;
+	static BigDecimal STARTING_MIN_X = new BigDecimal(-2);
+	static BigDecimal STARTING_MAX_X = new BigDecimal( 2);
+	static BigDecimal STARTING_MIN_Y = new BigDecimal(-2);
+	static BigDecimal STARTING_MAX_Y = new BigDecimal( 2);
 
 	// ending MIN and MAX coordinate values -- I took these values from a stackoverflow thread
 	// of interesting zoom locations on the mandelbrot set.
-	static double ENDING_MIN_X = -1.2576470439078538;
-	static double ENDING_MIN_Y = 0.3780652779236957;
-	static double ENDING_MAX_X = -1.2576470439074896;
-	static double ENDING_MAX_Y = 0.3780652779240597;
+	static BigDecimal ENDING_MIN_X = new BigDecimal("-1.2576470439078538");
+	static BigDecimal ENDING_MIN_Y = new BigDecimal("0.3780652779236957");
+	static BigDecimal ENDING_MAX_X = new BigDecimal("-1.2576470439074896");
+	static BigDecimal ENDING_MAX_Y = new BigDecimal("0.3780652779240597");
+
+	// the zoom is kept in BigDecimal so frames can go deeper than a double can 
+	// place their edges -- this is how many digits it carries, enough for the 
+	// ending bounds. Ending bounds with no width or height fail here at startup.
+	final static MathContext ZOOM_ROUNDING = PrecisionTier.zoomRounding(ENDING_MIN_X, ENDING_MAX_X,
+			ENDING_MIN_Y, ENDING_MAX_Y, WIDTH);
 
 	// increment values -- i.e. how fast we are zooming in
 	// this scales with how many frames we want to generate
-	static double MIN_X_INC = (ENDING_MIN_X - STARTING_MIN_X) / NUM_FRAMES;
-	static double MIN_Y_INC = (ENDING_MIN_Y - STARTING_MIN_Y) / NUM_FRAMES;
-	static double MAX_X_INC = (ENDING_MAX_X - STARTING_MAX_X) / NUM_FRAMES;
-	static double MAX_Y_INC = (ENDING_MAX_Y - STARTING_MAX_Y) / NUM_FRAMES;
+	static BigDecimal MIN_X_INC = ENDING_MIN_X.subtract(STARTING_MIN_X).divide(new BigDecimal(NUM_FRAMES), ZOOM_ROUNDING);
+	static BigDecimal MIN_Y_INC = ENDING_MIN_Y.subtract(STARTING_MIN_Y).divide(new BigDecimal(NUM_FRAMES), ZOOM_ROUNDING);
+	static BigDecimal MAX_X_INC = ENDING_MAX_X.subtract(STARTING_MAX_X).divide(new BigDecimal(NUM_FRAMES), ZOOM_ROUNDING);
+	static BigDecimal MAX_Y_INC = ENDING_MAX_Y.subtract(STARTING_MAX_Y).divide(new BigDecimal(NUM_FRAMES), ZOOM_ROUNDING);
+
+	// each frame the increments shrink by this much
+	final static BigDecimal ZOOM_FACTOR = new BigDecimal("0.9");
+
+	// the current frame's bounds (min x, max x, min y, max y) converted once 
+	// per frame for the DOUBLE and DOUBLE_DOUBLE kernels, see setFrameBounds()
+	static double[] frameBounds = new double[4];
+	static DoubleDouble[] frameBoundsDD = new DoubleDouble[4];
 
 	/**
 	 * Default setting for the max iterations the algorithm will test 
 	 * before calling it inside the set or not.
 	 */
 	final static int MAX_ITERATIONS = 1000;
+
+	// escape radius squared -- every kernel stops once |z|^2 reaches this
+	final static BigDecimal ESCAPE_RADIUS_SQUARED = new BigDecimal(4);
 	
 	/**
 	 * Tests the divergence of an input complex number c in the 
@@ -72,7 +94,7 @@ public class Mandelbrot {
 		DoubleComplexNum z = new DoubleComplexNum(0,0); //first iteration always starts with z= (0 + 0i)
 		
 		int i = 0;
-		while (z.magnitude() < 2 && i < iterations) {
+		while (z.magnitudeSquared() < 4 && i < iterations) {
 			z = z.pow2();
 			z = z.add(c);
 			i++;
@@ -81,64 +103,236 @@ public class Mandelbrot {
 		return i;
 	}
 
+	/**
+	 * Tests the divergence in double-double precision, for frames 
+	 * past what a double can resolve.
+	 * @param c input constant complex number
+	 * @param iterations amount of iterations it should try before 
+	 * giving up.
+	 * @return same as testDivergence(DoubleComplexNum, int)
+	 */
+	public static int testDivergence(DoubleDoubleComplexNum c, int iterations) {
+		DoubleDoubleComplexNum z = new DoubleDoubleComplexNum(new DoubleDouble(0), new DoubleDouble(0));
+
+		int i = 0;
+		while (z.magnitudeSquared() < 4 && i < iterations) {
+			z = z.pow2();
+			z = z.add(c);
+			i++;
+		}
+
+		return i;
+	}
+
+	/**
+	 * Tests the divergence in arbitrary precision. z keeps the 
+	 * rounding c was built with.
+	 * @param c input constant complex number
+	 * @param iterations amount of iterations it should try before 
+	 * giving up.
+	 * @return same as testDivergence(DoubleComplexNum, int)
+	 */
+	public static int testDivergence(ComplexNum c, int iterations) {
+		ComplexNum z = new ComplexNum(BigDecimal.ZERO, BigDecimal.ZERO, c.rounding);
+
+		int i = 0;
+		while (z.magnitudeSquared().compareTo(ESCAPE_RADIUS_SQUARED) < 0 && i < iterations) {
+			z = z.pow2();
+			z = z.add(c);
+			i++;
+		}
+
+		return i;
+	}
+
+	/**
+	 * Tests the divergence of pixel (x, y) of the current frame using 
+	 * the kernel for the given tier. Every tier maps pixels the same 
+	 * way, so only the arithmetic changes between them. Expects 
+	 * setFrameBounds() to have been called for the frame.
+	 * @param x pixel row
+	 * @param y pixel column
+	 * @param tier precision the frame is rendered in
+	 * @param rounding MathContext for PrecisionTier.ARBITRARY, ignored otherwise
+	 * @return same as testDivergence(DoubleComplexNum, int)
+	 */
+	public static int testPixel(int x, int y, PrecisionTier tier, MathContext rounding) {
+		switch (tier) {
+			case DOUBLE:
+				return testDivergence(new DoubleComplexNum(
+						mapToCoordinatePlane(y, frameBounds[0], frameBounds[1]),
+						mapToCoordinatePlane(x, frameBounds[2], frameBounds[3])));
+			case DOUBLE_DOUBLE:
+				return testDivergence(new DoubleDoubleComplexNum(
+						mapToCoordinatePlane(y, frameBoundsDD[0], frameBoundsDD[1]),
+						mapToCoordinatePlane(x, frameBoundsDD[2], frameBoundsDD[3])),
+						MAX_ITERATIONS);
+			default:
+				return testDivergence(new ComplexNum(
+						mapToCoordinatePlane(y, STARTING_MIN_X, STARTING_MAX_X, rounding),
+						mapToCoordinatePlane(x, STARTING_MIN_Y, STARTING_MAX_Y, rounding),
+						rounding),
+						MAX_ITERATIONS);
+		}
+	}
+
 	public static double mapToCoordinatePlane(int input, double minOutput, double maxOutput) {
 		return (input * (maxOutput - minOutput)) / WIDTH + minOutput;
 	}
 
 	/**
-	 * Calculate mandelbrot set and set image pixels for output
+	 * Same mapping as mapToCoordinatePlane, but in double-double so 
+	 * the pixel offset isn't rounded away against minOutput.
+	 */
+	public static DoubleDouble mapToCoordinatePlane(int input, DoubleDouble minOutput, DoubleDouble maxOutput) {
+		DoubleDouble span = maxOutput.subtract(minOutput);
+		return span.multiply(input).divide(WIDTH).add(minOutput);
+	}
+
+	/**
+	 * Same mapping as mapToCoordinatePlane, but in BigDecimal rounded 
+	 * to the given precision.
+	 */
+	public static BigDecimal mapToCoordinatePlane(int input, BigDecimal minOutput, BigDecimal maxOutput, MathContext rounding) {
+		BigDecimal span = maxOutput.subtract(minOutput);
+		return span.multiply(new BigDecimal(input)).divide(new BigDecimal(WIDTH), rounding).add(minOutput, rounding);
+	}
+
+	/**
+	 * Converts the current zoom bounds into frameBounds and frameBoundsDD, 
+	 * so the per-pixel kernels don't convert BigDecimals themselves.
+	 */
+	public static void setFrameBounds() {
+		BigDecimal[] bounds = { STARTING_MIN_X, STARTING_MAX_X, STARTING_MIN_Y, STARTING_MAX_Y };
+		for (int i = 0; i < bounds.length; i++) {
+			frameBounds[i] = bounds[i].doubleValue();
+			frameBoundsDD[i] = new DoubleDouble(bounds[i]);
+		}
+	}
+
+	/**
+	 * Returns the file a frame is saved as
+	 * @param frame 1-based frame number
+	 * @return path of the frame image
+	 */
+	public static String frameFileName(int frame) {
+		return "images/frame" + String.format("%03d", frame) + ".png";
+	}
+
+	/**
+	 * Moves the bounds one frame further into the zoom and slows the 
+	 * zoom down for the next frame.
+	 */
+	public static void advanceBounds() {
+		// increment bounds
+		STARTING_MIN_X = STARTING_MIN_X.add(MIN_X_INC, ZOOM_ROUNDING);
+		STARTING_MIN_Y = STARTING_MIN_Y.add(MIN_Y_INC, ZOOM_ROUNDING);
+		STARTING_MAX_X = STARTING_MAX_X.add(MAX_X_INC, ZOOM_ROUNDING);
+		STARTING_MAX_Y = STARTING_MAX_Y.add(MAX_Y_INC, ZOOM_ROUNDING);
+
+		// update the increment values
+		MIN_X_INC = MIN_X_INC.multiply(ZOOM_FACTOR, ZOOM_ROUNDING);
+		MIN_Y_INC = MIN_Y_INC.multiply(ZOOM_FACTOR, ZOOM_ROUNDING);
+		MAX_X_INC = MAX_X_INC.multiply(ZOOM_FACTOR, ZOOM_ROUNDING);
+		MAX_Y_INC = MAX_Y_INC.multiply(ZOOM_FACTOR, ZOOM_ROUNDING);
+	}
+
+	/**
+	 * Calculate mandelbrot set and set image pixels for output, 
+	 * starting from the first frame. Any checkpoint from an earlier 
+	 * run is thrown away.
 	 */
 	public static void drawFrames() {
-		int frameCount = 0;
-		while (STARTING_MIN_X < ENDING_MIN_X ||
-			   STARTING_MIN_Y < ENDING_MIN_Y ||
-			   STARTING_MAX_X > ENDING_MAX_X ||
-			   STARTING_MAX_Y > ENDING_MAX_Y ){
+		Checkpoint.discard();
+		drawFrames(new Checkpoint());
+	}
+
+	/**
+	 * Calculate mandelbrot set and set image pixels for output, 
+	 * continuing after the frames the checkpoint says are done. The 
+	 * checkpoint is updated after each frame, and every TILE_ROWS rows 
+	 * while a frame is being drawn.
+	 * @param checkpoint progress to continue from and keep up to date
+	 */
+	public static void drawFrames(Checkpoint checkpoint) {
+		int frameCount = checkpoint.frameCount;
+		while (STARTING_MIN_X.compareTo(ENDING_MIN_X) < 0 ||
+			   STARTING_MIN_Y.compareTo(ENDING_MIN_Y) < 0 ||
+			   STARTING_MAX_X.compareTo(ENDING_MAX_X) > 0 ||
+			   STARTING_MAX_Y.compareTo(ENDING_MAX_Y) > 0 ){
+
+				setFrameBounds();
+
+				// pick the cheapest number type that can still resolve this frame's pixels
+				PrecisionTier tier = PrecisionTier.plan(STARTING_MIN_X, STARTING_MAX_X,
+						STARTING_MIN_Y, STARTING_MAX_Y, WIDTH);
+				MathContext rounding = ComplexNum.DEFAULT_ROUNDING;
+				if (tier == PrecisionTier.ARBITRARY) {
+					rounding = PrecisionTier.arbitraryRounding(STARTING_MIN_X, STARTING_MAX_X,
+							STARTING_MIN_Y, STARTING_MAX_Y, WIDTH);
+				}
+				System.out.println("Frame " + (frameCount+1) + " using " + tier + " precision");
+
+				// pick up rows a killed run already finished for this frame
+				int startRow = checkpoint.loadPartial(fd.pixelColors);
+				if (startRow > 0) {
+					System.out.println("Restored " + startRow + " rows of frame " + (frameCount+1));
+				}
 				
-				for (int x = 0; x < WIDTH; x++) { // rows
+				for (int x = startRow; x < WIDTH; x++) { // rows
 					for (int y = 0; y < HEIGHT; y++) { // columns
-						// map pixel x/y values to values inside [-2, 2]
-						double real = mapToCoordinatePlane(y, STARTING_MIN_X, STARTING_MAX_X);
-						double imaginary = mapToCoordinatePlane(x, STARTING_MIN_Y, STARTING_MAX_Y);
-						DoubleComplexNum c = new DoubleComplexNum(real, imaginary);
-						int n = testDivergence(c);
+						// map pixel x/y values to values inside [-2, 2] and test in the chosen tier
+						int n = testPixel(x, y, tier, rounding);
 						int color = fd.getColor(n, MAX_ITERATIONS);
 						fd.pixelColors[y + x * WIDTH] = color;
 					}
+					if ((x + 1) % TILE_ROWS == 0 && x + 1 < WIDTH) {
+						try {
+							checkpoint.savePartial(x + 1, fd.pixelColors);
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
 				}
 
 				// map color values to image pixels
 				fd.image.setRGB(0, 0, WIDTH, HEIGHT, fd.pixelColors, 0, WIDTH);
 
-				// save image file
-				String fileName = "images/frame" + String.format("%03d", (frameCount+1)) + ".png";
+				// save image file, via a temp file so a kill never leaves half a png behind
+				String fileName = frameFileName(frameCount+1);
 				File f = new File(fileName);
+				File tmp = new File(fileName + ".tmp");
 				try {
-					ImageIO.write(fd.image, "png", f);
+					ImageIO.write(fd.image, "png", tmp);
+					Checkpoint.moveIntoPlace(tmp, f);
 				} catch (IOException e) {
+					// stop before the checkpoint can count a frame that isn't on disk
 					e.printStackTrace();
+					tmp.delete();
+					System.out.println("Could not save frame " + (frameCount+1) + ", stopping");
+					return;
 				}
 				System.out.println("Saved frame " + (frameCount+1) + " as " + fileName);
 
-				// increment bounds
-				STARTING_MIN_X = STARTING_MIN_X + MIN_X_INC;
-				STARTING_MIN_Y = STARTING_MIN_Y + MIN_Y_INC;
-				STARTING_MAX_X = STARTING_MAX_X + MAX_X_INC;
-				STARTING_MAX_Y = STARTING_MAX_Y + MAX_Y_INC;
-
-				// update the increment values
-				MIN_X_INC *= 0.9;
-				MIN_Y_INC *= 0.9;
-				MAX_X_INC *= 0.9;
-				MAX_Y_INC *= 0.9;
-
+				advanceBounds();
 				frameCount++;
+
+				try {
+					checkpoint.update(frameCount);
+				} catch (IOException e) {
+					// carrying on would leave nothing durable to resume from
+					e.printStackTrace();
+					System.out.println("Could not save checkpoint after frame " + frameCount + ", stopping");
+					return;
+				}
 			}
 	}
 
 	/**
 	 * Prints to console are rough approximation of the Mandelbrot set 
 	 * using "*" for being in the set, and " " for being outside it.
+	 * Then draws the zoom frames, or with "resume" as the first argument, 
+	 * continues the zoom from images/checkpoint.properties.
 	 * @param args
 	 */
 	public static void main(String[] args) {
@@ -160,7 +354,15 @@ public class Mandelbrot {
 		}
 
 		// the real deal
-		drawFrames();
+		if (args.length > 0 && args[0].equals("resume")) {
+			try {
+				drawFrames(Checkpoint.resume());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		} else {
+			drawFrames();
+		}
 	}
 
 }
@@ -0,0 +1,128 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Number types the mandelbrot kernel can run in, cheapest first. plan() picks
+ * the cheapest one that can still tell neighbouring pixels of a frame apart.
+ */
+public enum PrecisionTier {
+
+	DOUBLE(53),
+	DOUBLE_DOUBLE(106),
+	ARBITRARY(Integer.MAX_VALUE);
+
+	/**
+	 * Extra mantissa bits kept on top of what separates two pixels, to absorb
+	 * the rounding error that builds up over MAX_ITERATIONS iterations: two
+	 * bits per doubling of MAX_ITERATIONS, plus 4 to spare. At 1000 iterations
+	 * double starts disagreeing with double-double on the default zoom about
+	 * 21 bits short of its mantissa, so this hands over before that and the
+	 * frames on either side of a switch match.
+	 */
+	final static int GUARD_BITS = 2 * (32 - Integer.numberOfLeadingZeros(Mandelbrot.MAX_ITERATIONS - 1)) + 4;
+
+	/**
+	 * Decimal digits the zoom state carries beyond what its deepest frame
+	 * needs, so the rounding in each advance stays far below a pixel even
+	 * after many thousands of frames.
+	 */
+	final static int ZOOM_GUARD_DIGITS = 10;
+
+	// mantissa bits the tier carries
+	final int mantissaBits;
+
+	PrecisionTier(int mantissaBits) {
+		this.mantissaBits = mantissaBits;
+	}
+
+	/**
+	 * Number of mantissa bits needed to resolve a pixel spacing of spacing
+	 * at coordinates as large as magnitude, including GUARD_BITS. Works on
+	 * the BigDecimals directly, so a spacing too small for a double still
+	 * counts.
+	 * @param spacing distance between neighbouring pixels, greater than 0
+	 * @param magnitude largest absolute value the coordinates reach
+	 * @return bits of mantissa the kernel needs
+	 * @throws ArithmeticException if the answer doesn't fit in an int
+	 */
+	public static int requiredBits(BigDecimal spacing, BigDecimal magnitude) {
+		// z wanders anywhere inside |z| < 2 while iterating, whatever the frame
+		magnitude = magnitude.max(new BigDecimal(2));
+		double bits = Math.ceil(log2(magnitude) - log2(spacing));
+		return Math.addExact(Math.toIntExact((long) bits), GUARD_BITS);
+	}
+
+	/**
+	 * Base 2 logarithm of a positive BigDecimal of any size: the decimal
+	 * exponent comes from precision and scale, and only the leading digits
+	 * go through a double.
+	 */
+	private static double log2(BigDecimal value) {
+		long exponent = (long) value.precision() - value.scale() - 1;
+		double leading = value.movePointLeft((int) exponent).doubleValue(); // in [1, 10)
+		return (exponent + Math.log10(leading)) / Math.log10(2);
+	}
+
+	/**
+	 * Returns the cheapest tier that stays exact for a frame with the given
+	 * bounds rendered onto pixels x pixels.
+	 * @param minX left edge of the frame
+	 * @param maxX right edge of the frame
+	 * @param minY bottom edge of the frame
+	 * @param maxY top edge of the frame
+	 * @param pixels pixels along each edge
+	 * @return tier to render this frame in
+	 * @throws IllegalArgumentException if the frame has no width or height
+	 */
+	public static PrecisionTier plan(BigDecimal minX, BigDecimal maxX, BigDecimal minY, BigDecimal maxY, int pixels) {
+		int bits = requiredBits(minX, maxX, minY, maxY, pixels);
+		for (PrecisionTier tier : values()) {
+			if (bits <= tier.mantissaBits) {
+				return tier;
+			}
+		}
+		return ARBITRARY;
+	}
+
+	/**
+	 * Rounding for ARBITRARY frames: enough decimal digits to hold the
+	 * required bits, instead of the 10 digits of ComplexNum.DEFAULT_ROUNDING.
+	 * Takes the same frame bounds as plan().
+	 * @return MathContext to build ComplexNums with
+	 * @throws IllegalArgumentException if the frame has no width or height
+	 */
+	public static MathContext arbitraryRounding(BigDecimal minX, BigDecimal maxX, BigDecimal minY, BigDecimal maxY, int pixels) {
+		int bits = requiredBits(minX, maxX, minY, maxY, pixels);
+		return new MathContext((int) Math.ceil(bits * Math.log10(2)));
+	}
+
+	/**
+	 * Rounding to keep the zoom state in for a zoom ending at the given
+	 * bounds. Frames close in on the ending bounds from outside, so none
+	 * is narrower and this is enough for all of them.
+	 * @param minX left edge of the last frame
+	 * @param maxX right edge of the last frame
+	 * @param minY bottom edge of the last frame
+	 * @param maxY top edge of the last frame
+	 * @param pixels pixels along each edge
+	 * @return MathContext for the zoom bounds and increments
+	 * @throws IllegalArgumentException if the ending bounds have no width or height
+	 */
+	public static MathContext zoomRounding(BigDecimal minX, BigDecimal maxX, BigDecimal minY, BigDecimal maxY, int pixels) {
+		int digits = arbitraryRounding(minX, maxX, minY, maxY, pixels).getPrecision();
+		return new MathContext(digits + ZOOM_GUARD_DIGITS);
+	}
+
+	// smallest pixel spacing against the largest coordinate of the frame
+	private static int requiredBits(BigDecimal minX, BigDecimal maxX, BigDecimal minY, BigDecimal maxY, int pixels) {
+		BigDecimal span = maxX.subtract(minX).min(maxY.subtract(minY));
+		if (span.signum() <= 0) {
+			throw new IllegalArgumentException("Frame bounds [" + minX + ", " + maxX + "] x ["
+					+ minY + ", " + maxY + "] have no width or height");
+		}
+		// 16 digits of the spacing are plenty to count bits from
+		BigDecimal spacing = span.divide(new BigDecimal(pixels), MathContext.DECIMAL64);
+		BigDecimal magnitude = minX.abs().max(maxX.abs()).max(minY.abs()).max(maxY.abs());
+		return requiredBits(spacing, magnitude);
+	}
+}